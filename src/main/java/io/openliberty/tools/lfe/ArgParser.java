@@ -1,7 +1,10 @@
 package io.openliberty.tools.lfe;
 
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -9,6 +12,7 @@ import static java.util.stream.Collectors.toUnmodifiableList;
 
 final class ArgParser {
     final EnumSet<Flag> flags = EnumSet.noneOf(Flag.class);
+    final Map<Option, String> options = new EnumMap<>(Option.class);
     final List<List<QueryElement>> query;
     final String[] args;
     int argIndex;
@@ -22,6 +26,12 @@ final class ArgParser {
 
     void parseOptions() {
         for (; argIndex < args.length; argIndex++) {
+            final Option option = Option.fromArg(args[argIndex]);
+            if (null != option) {
+                if (++argIndex == args.length) throw new MisuseError("option '" + option.toArg() + "' requires a value");
+                options.put(option, args[argIndex]);
+                continue;
+            }
             final Flag flag = Flag.fromArg(args[argIndex]);
             switch (flag) {
                 case TERMINATOR:
@@ -38,6 +48,10 @@ final class ArgParser {
         }
     }
 
+    OptionalInt positiveInt(Option option) {
+        return options.containsKey(option) ? OptionalInt.of(option.parsePositiveInt(options.get(option))) : OptionalInt.empty();
+    }
+
     List<List<QueryElement>> parseRemainingArguments() {
         return IntStream.range(argIndex, args.length)
                 .peek(i -> argIndex = i)
@@ -46,7 +60,7 @@ final class ArgParser {
                 .collect(toUnmodifiableList());
     }
 
-    private static List<QueryElement> parseQuery(String s) {
+    static List<QueryElement> parseQuery(String s) {
         return Stream.of(s.split("/"))
                 .map(QueryElement::of)
                 .collect(toUnmodifiableList());
@@ -0,0 +1,28 @@
+package io.openliberty.tools.lfe;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+enum EdgeKind {
+    /** the feature named in a Subsystem-Content clause */
+    DIRECT,
+    /** an alternative version of that feature, permitted by its ibm.tolerates qualifier */
+    TOLERATED;
+
+    /**
+     * Parses the qualifier on a query element (e.g. the 'any' in "javaee-8.0/*;any")
+     * into the kinds of edge that may be followed to reach a matching feature.
+     */
+    static Set<EdgeKind> fromQualifier(String qualifier) {
+        switch (qualifier) {
+            case "direct":
+                return EnumSet.of(DIRECT);
+            case "tolerated":
+                return EnumSet.of(TOLERATED);
+            case "any":
+                return EnumSet.allOf(EdgeKind.class);
+            default:
+                throw new MisuseError("unknown query qualifier '" + qualifier + "' (expected direct|tolerated|any)");
+        }
+    }
+}
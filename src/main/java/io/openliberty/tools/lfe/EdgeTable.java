@@ -0,0 +1,93 @@
+package io.openliberty.tools.lfe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Compact metadata for every resolved Subsystem-Content dependency, stored in parallel arrays.
+ * Edges must be added in order of their source feature, so that the edges
+ * from each feature occupy a contiguous range (as in a compressed sparse row matrix).
+ * Strings are interned, and referenced by their index in a shared table.
+ */
+final class EdgeTable {
+    private static final int NONE = -1;
+    private static final EdgeKind[] EDGE_KINDS = EdgeKind.values();
+    private final int[] offsets;
+    private int filled;
+    private int size;
+    private int[] targets = new int[16];
+    private int[] kinds = new int[16];
+    private int[] declaredNames = new int[16];
+    private int[] versionRanges = new int[16];
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+
+    EdgeTable(int featureCount) {
+        this.offsets = new int[featureCount + 1];
+    }
+
+    void add(int from, int to, EdgeKind kind, String declaredName, String versionRange) {
+        if (from + 1 < filled) throw new IllegalStateException("Edges must be added in order of source feature");
+        while (filled <= from) offsets[filled++] = size;
+        if (size == targets.length) {
+            int capacity = size * 2;
+            targets = Arrays.copyOf(targets, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            declaredNames = Arrays.copyOf(declaredNames, capacity);
+            versionRanges = Arrays.copyOf(versionRanges, capacity);
+        }
+        targets[size] = to;
+        kinds[size] = kind.ordinal();
+        declaredNames[size] = intern(declaredName);
+        versionRanges[size] = intern(versionRange);
+        size++;
+    }
+
+    private int intern(String s) {
+        if (null == s) return NONE;
+        return stringIndex.computeIfAbsent(s, k -> {
+            strings.add(k);
+            return strings.size() - 1;
+        });
+    }
+
+    /** the indexes of the edges from the specified feature */
+    IntStream edgesFrom(int from) {
+        int start = from < filled ? offsets[from] : size;
+        int end = from + 1 < filled ? offsets[from + 1] : size;
+        return IntStream.range(start, end);
+    }
+
+    /** the distinct features reachable from the specified feature by any of the specified kinds of edge */
+    IntStream targets(int from, Set<EdgeKind> edgeKinds) {
+        return edgesFrom(from)
+                .filter(e -> edgeKinds.contains(kind(e)))
+                .map(this::target)
+                .distinct();
+    }
+
+    int target(int edge) {
+        return targets[edge];
+    }
+
+    EdgeKind kind(int edge) {
+        return EDGE_KINDS[kinds[edge]];
+    }
+
+    String declaredName(int edge) {
+        return strings.get(declaredNames[edge]);
+    }
+
+    /**
+     * The version range declared by the clause of this edge, or null if none was declared.
+     * For a tolerated edge, the tolerated version is given by its target rather than this.
+     */
+    String versionRange(int edge) {
+        return versionRanges[edge] == NONE ? null : strings.get(versionRanges[edge]);
+    }
+}
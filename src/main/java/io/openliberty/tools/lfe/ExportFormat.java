@@ -0,0 +1,261 @@
+package io.openliberty.tools.lfe;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOError;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.BitSet;
+import java.util.jar.Attributes;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Machine-readable representations of the dependency graph (or a subgraph of it).
+ * Each format is streamed straight from the feature array and edge table,
+ * so the extra memory used does not grow with the size of the graph.
+ * Every format includes tolerated edges as well as direct ones.
+ * Nodes are identified by their index in {@link LibertyFeatures#features}.
+ */
+enum ExportFormat {
+    /**
+     * A single JSON object with an array of nodes and an array of edges, in the same form as {@link #NDJSON}.
+     * Each manifest header of a node is written as an array of its parsed elements.
+     */
+    JSON {
+        void write(LibertyFeatures liberty, BitSet nodes, OutputStream stream) throws IOException {
+            asText(stream, out -> writeJson(liberty, nodes, out));
+        }
+
+        private void writeJson(LibertyFeatures liberty, BitSet nodes, Writer out) throws IOException {
+            out.write("{\"nodes\":[");
+            String separator = "";
+            for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+                out.write(separator);
+                writeJsonNode(i, liberty.features[i], out);
+                separator = ",";
+            }
+            out.write("],\"edges\":[");
+            separator = "";
+            final EdgeTable edges = liberty.edges;
+            for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+                for (var it = edges.edgesFrom(i).iterator(); it.hasNext(); ) {
+                    int e = it.nextInt();
+                    if (!nodes.get(edges.target(e))) continue;
+                    out.write(separator);
+                    writeJsonEdge(i, edges, e, out);
+                    separator = ",";
+                }
+            }
+            out.write("]}\n");
+        }
+    },
+    /**
+     * One JSON object per line, for each node followed by each edge.
+     * Each edge has its kind, the feature name declared in its Subsystem-Content clause,
+     * and the version range declared by that clause (if any).
+     */
+    NDJSON {
+        void write(LibertyFeatures liberty, BitSet nodes, OutputStream stream) throws IOException {
+            asText(stream, out -> writeNdjson(liberty, nodes, out));
+        }
+
+        private void writeNdjson(LibertyFeatures liberty, BitSet nodes, Writer out) throws IOException {
+            for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+                writeJsonNode(i, liberty.features[i], out);
+                out.write('\n');
+            }
+            final EdgeTable edges = liberty.edges;
+            for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+                for (var it = edges.edgesFrom(i).iterator(); it.hasNext(); ) {
+                    int e = it.nextInt();
+                    if (!nodes.get(edges.target(e))) continue;
+                    writeJsonEdge(i, edges, e, out);
+                    out.write('\n');
+                }
+            }
+        }
+    },
+    /** a Graphviz digraph, labelling each node with its short name (if it has one) and dashing tolerated edges */
+    DOT {
+        void write(LibertyFeatures liberty, BitSet nodes, OutputStream stream) throws IOException {
+            asText(stream, out -> writeDot(liberty, nodes, out));
+        }
+
+        private void writeDot(LibertyFeatures liberty, BitSet nodes, Writer out) throws IOException {
+            out.write("digraph features {\n");
+            for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+                out.write("  n" + i + " [label=");
+                writeQuoted(Main.shortName(liberty.features[i]), out);
+                out.write(",visibility=" + Visibility.from(liberty.features[i]).name().toLowerCase() + "];\n");
+            }
+            final EdgeTable edges = liberty.edges;
+            for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+                for (var it = edges.edgesFrom(i).iterator(); it.hasNext(); ) {
+                    int e = it.nextInt();
+                    if (!nodes.get(edges.target(e))) continue;
+                    out.write("  n" + i + " -> n" + edges.target(e));
+                    out.write(edges.kind(e) == EdgeKind.TOLERATED ? " [style=dashed];\n" : ";\n");
+                }
+            }
+            out.write("}\n");
+        }
+    },
+    /**
+     * Big-endian binary: the magic bytes "LFE" and a version byte,
+     * then the node count and for each node its id and (modified UTF-8) symbolic name,
+     * then the edge count and for each edge the ids of its two ends and a byte for its {@link EdgeKind} ordinal.
+     */
+    BINARY {
+        static final int VERSION = 2;
+
+        void write(LibertyFeatures liberty, BitSet nodes, OutputStream stream) throws IOException {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeBytes("LFE");
+            out.writeByte(VERSION);
+            out.writeInt(nodes.cardinality());
+            for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+                out.writeInt(i);
+                out.writeUTF(Main.fullName(liberty.features[i]));
+            }
+            // count the edges first, so a reader can size its arrays up front
+            final EdgeTable edges = liberty.edges;
+            int edgeCount = 0;
+            for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1))
+                edgeCount += (int) edges.edgesFrom(i).filter(e -> nodes.get(edges.target(e))).count();
+            out.writeInt(edgeCount);
+            for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+                for (var it = edges.edgesFrom(i).iterator(); it.hasNext(); ) {
+                    int e = it.nextInt();
+                    if (!nodes.get(edges.target(e))) continue;
+                    out.writeInt(i);
+                    out.writeInt(edges.target(e));
+                    out.writeByte(edges.kind(e).ordinal());
+                }
+            }
+            out.flush();
+        }
+    };
+
+    abstract void write(LibertyFeatures liberty, BitSet nodes, OutputStream out) throws IOException;
+
+    private interface TextWriter {
+        void write(Writer out) throws IOException;
+    }
+
+    /**
+     * Lets a text format write to the stream as UTF-8 characters
+     */
+    private static void asText(OutputStream stream, TextWriter text) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, UTF_8));
+        text.write(writer);
+        writer.flush();
+    }
+
+    void export(LibertyFeatures liberty, BitSet nodes) {
+        try {
+            write(liberty, nodes, System.out);
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+    }
+
+    String toArg() {
+        return name().toLowerCase();
+    }
+
+    static String describeAll() {
+        return Stream.of(values()).map(ExportFormat::toArg).collect(joining("|"));
+    }
+
+    static ExportFormat fromArg(String arg) {
+        return Stream.of(values())
+                .filter(f -> f.toArg().equals(arg))
+                .findFirst()
+                .orElseThrow(() -> new MisuseError("unknown export format '" + arg + "' (expected " + describeAll() + ")"));
+    }
+
+    private static void writeJsonNode(int id, Attributes feature, Writer out) throws IOException {
+        out.write("{\"id\":" + id + ",\"name\":");
+        writeQuoted(Main.fullName(feature), out);
+        out.write(",\"visibility\":\"" + Visibility.from(feature).name().toLowerCase() + "\"");
+        for (Key key : Key.values()) {
+            if (key.isAbsent(feature)) continue;
+            out.write(',');
+            writeQuoted(key.name.toString(), out);
+            out.write(":[");
+            String separator = "";
+            for (var elements = key.parseValues(feature).iterator(); elements.hasNext(); ) {
+                out.write(separator);
+                writeJsonElement(elements.next(), out);
+                separator = ",";
+            }
+            out.write(']');
+        }
+        out.write('}');
+    }
+
+    private static void writeJsonEdge(int from, EdgeTable edges, int edge, Writer out) throws IOException {
+        out.write("{\"from\":" + from + ",\"to\":" + edges.target(edge));
+        out.write(",\"kind\":\"" + edges.kind(edge).name().toLowerCase() + "\",\"declared\":");
+        writeQuoted(edges.declaredName(edge), out);
+        if (null != edges.versionRange(edge)) {
+            out.write(",\"version\":");
+            writeQuoted(edges.versionRange(edge), out);
+        }
+        out.write('}');
+    }
+
+    /**
+     * Writes a parsed header element as its id and an object of its qualifiers
+     */
+    private static void writeJsonElement(ValueElement element, Writer out) throws IOException {
+        out.write("{\"id\":");
+        writeQuoted(element.id, out);
+        out.write(",\"qualifiers\":{");
+        String separator = "";
+        for (var qualifier : element.getQualifiers().entrySet()) {
+            out.write(separator);
+            writeQuoted(qualifier.getKey(), out);
+            out.write(':');
+            writeQuoted(qualifier.getValue(), out);
+            separator = ",";
+        }
+        out.write("}}");
+    }
+
+    /**
+     * Writes a double-quoted string, escaped for JSON (which is also valid for DOT)
+     */
+    private static void writeQuoted(String s, Writer out) throws IOException {
+        out.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    out.write('\\');
+                    out.write(c);
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) out.write(String.format("\\u%04x", (int) c));
+                    else out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
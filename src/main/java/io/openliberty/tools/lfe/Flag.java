@@ -22,7 +22,16 @@ enum Flag implements Opt<Flag> {
     PATHS("Display all matching paths (supersedes " + TREE.toArg() + ")"),
     TABS("Suppress headers and use tabs to delimit fields to aid scripting.", DECORATE),
     SIMPLE_SORT("Sort by full name. Do not categorise by visibility.", FULL_NAMES),
+    REPORT("Instead of matching features, print a health report for the whole install:"
+            + "%n\t\t\tcycles, dependency depth, fan-in, fan-out and transitive closure sizes,"
+            + "%n\t\t\tprivate features no public feature reaches (by direct or tolerated dependencies),"
+            + "%n\t\t\tand public features depending on private features from another product."),
     WARN_MISSING("Warn if any features are referenced but not present."),
+    EXISTS("Print nothing. Exit with status 0 if any feature matches, 1 if none does, or 2 on any error."
+            + "%n\t\t\tStops searching at the first match."),
+    BATCH("Read patterns from standard input instead of the command line, one line of patterns at a time,"
+            + "%n\t\t\tprinting a blank line after the results of each line."
+            + "%n\t\t\tThe features are loaded once, and repeated lines are answered from memory."),
     IGNORE_DUPLICATES("Do NOT report duplicate feature attributes (e..g short names)."),
     TERMINATOR("Explicitly terminate the flags so that the following argument is interpreted as a query.") {
         public String toArg() {return "--";}
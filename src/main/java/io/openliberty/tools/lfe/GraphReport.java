@@ -0,0 +1,244 @@
+package io.openliberty.tools.lfe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import java.util.jar.Attributes;
+import java.util.stream.IntStream;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Whole-graph analysis of the features in an install, computed in linear time
+ * (apart from the transitive closures) over the existing dependency matrix.
+ */
+final class GraphReport {
+    static final int TOP_N = 10;
+    static final String CORE_PLATFORM = "core";
+
+    final LibertyFeatures liberty;
+    final int n;
+    /** the strongly connected components, in reverse topological order (dependencies first) */
+    final List<int[]> components = new ArrayList<>();
+    /** the index of each feature's component */
+    final int[] component;
+    /** the length of the longest dependency chain from each component */
+    final int[] depth;
+    /** the features reachable from each component, including its own members */
+    final BitSet[] closure;
+    final int[] fanIn;
+    final int edgeCount;
+
+    GraphReport(LibertyFeatures liberty) {
+        this.liberty = liberty;
+        this.n = liberty.features.length;
+        this.component = new int[n];
+        findComponents();
+        this.depth = new int[components.size()];
+        // dependencies are emitted first, so each component's successors already have a depth
+        for (int c = 0; c < components.size(); c++) depth[c] = successors(c).map(s -> depth[s] + 1).max().orElse(0);
+        this.closure = new BitSet[components.size()];
+        computeClosures();
+        this.fanIn = new int[n];
+        int edges = 0;
+        for (BitSet deps : liberty.dependencyMatrix) {
+            edges += deps.cardinality();
+            deps.stream().forEach(i -> fanIn[i]++);
+        }
+        this.edgeCount = edges;
+    }
+
+    /**
+     * Tarjan's algorithm, using explicit stacks to avoid overflowing the call stack on deep graphs.
+     * Components are emitted only once every component they depend on has been emitted.
+     */
+    private void findComponents() {
+        final BitSet[] deps = liberty.dependencyMatrix;
+        final int[] index = new int[n];
+        final int[] low = new int[n];
+        final int[] cursor = new int[n];
+        final int[] callStack = new int[n];
+        final int[] componentStack = new int[n];
+        final boolean[] onStack = new boolean[n];
+        Arrays.fill(index, -1);
+        int counter = 0, componentTop = 0;
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) continue;
+            int callTop = 0;
+            index[root] = low[root] = counter++;
+            componentStack[componentTop++] = root;
+            onStack[root] = true;
+            callStack[callTop++] = root;
+            while (callTop > 0) {
+                int v = callStack[callTop - 1];
+                int w = deps[v].nextSetBit(cursor[v]);
+                if (w >= 0) {
+                    cursor[v] = w + 1;
+                    if (index[w] < 0) {
+                        index[w] = low[w] = counter++;
+                        componentStack[componentTop++] = w;
+                        onStack[w] = true;
+                        callStack[callTop++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                // all dependencies of v have been visited
+                callTop--;
+                if (callTop > 0) {
+                    int u = callStack[callTop - 1];
+                    low[u] = Math.min(low[u], low[v]);
+                }
+                if (low[v] != index[v]) continue;
+                // v is the root of a component: pop it off the stack
+                int start = componentTop;
+                do start--; while (componentStack[start] != v);
+                int[] members = Arrays.copyOfRange(componentStack, start, componentTop);
+                componentTop = start;
+                for (int m : members) {
+                    onStack[m] = false;
+                    component[m] = components.size();
+                }
+                Arrays.sort(members);
+                components.add(members);
+            }
+        }
+    }
+
+    /**
+     * Components at the same depth cannot depend on each other,
+     * so each level of the condensed graph is computed in parallel.
+     */
+    private void computeClosures() {
+        IntStream.range(0, components.size())
+                .boxed()
+                .collect(groupingBy(c -> depth[c]))
+                .entrySet()
+                .stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(level -> level.getValue().parallelStream().forEach(c -> {
+                    BitSet reach = new BitSet(n);
+                    for (int m : components.get(c)) reach.set(m);
+                    successors(c).forEach(s -> reach.or(closure[s]));
+                    closure[c] = reach;
+                }));
+    }
+
+    /** the distinct components that a component depends on, excluding itself */
+    private IntStream successors(int c) {
+        return IntStream.of(components.get(c))
+                .flatMap(m -> liberty.dependencyMatrix[m].stream())
+                .map(i -> component[i])
+                .filter(s -> s != c)
+                .distinct();
+    }
+
+    boolean isCycle(int[] members) {
+        return members.length > 1 || liberty.dependencyMatrix[members[0]].get(members[0]);
+    }
+
+    int closureSize(int feature) {
+        // do not count the feature itself
+        return closure[component[feature]].cardinality() - 1;
+    }
+
+    int depth(int feature) {
+        return depth[component[feature]];
+    }
+
+    /**
+     * The platform of a feature is its declared product, or {@value #CORE_PLATFORM} if it has none.
+     */
+    static String platform(Attributes feature) {
+        return Key.IBM_PRODUCTID.get(feature).orElse(CORE_PLATFORM);
+    }
+
+    /**
+     * A breadth-first search from every public feature, following tolerated edges as well as direct ones,
+     * since a tolerated feature can be provisioned in place of the one named in the dependency.
+     * (The closures cannot be used here, because they only follow direct edges.)
+     */
+    BitSet reachableFromPublic() {
+        final EdgeTable edges = liberty.edges;
+        final BitSet reach = new BitSet(n);
+        final int[] queue = new int[n];
+        int head = 0, tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (!Visibility.PUBLIC.test(liberty.features[i])) continue;
+            reach.set(i);
+            queue[tail++] = i;
+        }
+        while (head < tail) {
+            for (var it = edges.edgesFrom(queue[head++]).iterator(); it.hasNext(); ) {
+                int j = edges.target(it.nextInt());
+                if (reach.get(j)) continue;
+                reach.set(j);
+                queue[tail++] = j;
+            }
+        }
+        return reach;
+    }
+
+    void print(Function<Attributes, String> name) {
+        final Attributes[] features = liberty.features;
+        final Function<int[], String> names = members -> IntStream.of(members).mapToObj(i -> name.apply(features[i])).collect(joining(", "));
+
+        System.out.println("[SUMMARY]");
+        System.out.printf("  features:               %d%n", n);
+        System.out.printf("  dependencies:           %d%n", edgeCount);
+        System.out.printf("  components:             %d%n", components.size());
+        System.out.printf("  maximum depth:          %d%n", IntStream.range(0, n).map(this::depth).max().orElse(0));
+        System.out.printf("  average depth:          %.2f%n", IntStream.range(0, n).map(this::depth).average().orElse(0));
+
+        System.out.println("[CYCLES]");
+        components.stream()
+                .filter(this::isCycle)
+                .map(names)
+                .sorted()
+                .forEach(s -> System.out.println("  " + s));
+
+        printTop("[LARGEST TRANSITIVE CLOSURES]", this::closureSize, name);
+        printTop("[LARGEST FAN-IN]", i -> fanIn[i], name);
+        printTop("[LARGEST FAN-OUT]", i -> liberty.dependencyMatrix[i].cardinality(), name);
+        printTop("[DEEPEST FEATURES]", this::depth, name);
+
+        System.out.println("[ORPHANED PRIVATE FEATURES]");
+        BitSet reachable = reachableFromPublic();
+        IntStream.range(0, n)
+                .filter(i -> !reachable.get(i))
+                .filter(i -> Visibility.PRIVATE.test(features[i]))
+                .mapToObj(i -> name.apply(features[i]))
+                .sorted()
+                .forEach(s -> System.out.println("  " + s));
+
+        System.out.println("[VISIBILITY VIOLATIONS]");
+        IntStream.range(0, n)
+                .filter(i -> Visibility.PUBLIC.test(features[i]))
+                .boxed()
+                .flatMap(i -> liberty.dependencyMatrix[i].stream()
+                        .filter(j -> Visibility.PRIVATE.test(features[j]))
+                        .filter(j -> !Objects.equals(platform(features[i]), platform(features[j])))
+                        .mapToObj(j -> String.format("  %s (%s) -> %s (%s)",
+                                name.apply(features[i]), platform(features[i]),
+                                name.apply(features[j]), platform(features[j]))))
+                .sorted()
+                .forEach(System.out::println);
+    }
+
+    private void printTop(String heading, IntUnaryOperator metric, Function<Attributes, String> name) {
+        System.out.println(heading);
+        IntStream.range(0, n)
+                .boxed()
+                .sorted(comparing((Integer i) -> metric.applyAsInt(i)).reversed().thenComparing(i -> name.apply(liberty.features[i])))
+                .limit(TOP_N)
+                .forEach(i -> System.out.printf("  %6d %s%n", metric.applyAsInt(i), name.apply(liberty.features[i])));
+    }
+}
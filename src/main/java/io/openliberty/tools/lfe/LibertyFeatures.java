@@ -5,16 +5,27 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.PrimitiveIterator;
 import java.util.jar.Attributes;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.Comparator.comparing;
+import static java.util.function.Predicate.not;
+import static java.util.Spliterator.NONNULL;
+import static java.util.Spliterator.ORDERED;
+import static java.util.Spliterators.spliteratorUnknownSize;
 
 final class LibertyFeatures {
     final Path root;
@@ -23,7 +34,10 @@ final class LibertyFeatures {
     final Map<String, Attributes> shortNames = new HashMap<>();
     final Attributes[] features;
     final Map<Attributes, Integer> featureIndex = new HashMap<>();
+    /** the direct dependencies of each feature */
     final BitSet[] dependencyMatrix;
+    /** the direct and tolerated dependencies of each feature, with their metadata */
+    final EdgeTable edges;
 
     LibertyFeatures(boolean ignoreDuplicates) {
         this.root = Paths.get(".");
@@ -57,19 +71,42 @@ final class LibertyFeatures {
         for (int i = 0; i < features.length; i++) featureIndex.put(features[i], i);
         // create an initially empty dependency matrix
         this.dependencyMatrix = Stream.generate(() -> new BitSet(features.length)).limit(features.length).toArray(BitSet[]::new);
-        // add the dependencies
-        allFeatures()
-                .filter(Key.SUBSYSTEM_CONTENT)
-                .forEach(f -> {
-                    BitSet dependencies = dependencyMatrix[featureIndex.get(f)];
-                    Key.SUBSYSTEM_CONTENT.parseValues(f)
-                            .filter(v -> "osgi.subsystem.feature".equals(v.getQualifier("type")))
-                            .map(v -> v.id)
-                            .map(featureMap::get)
-                            .map(featureIndex::get)
-                            .filter(Objects::nonNull) // ignore unknown features TODO: try tolerated versions instead
-                            .forEach(dependencies::set);
-                });
+        // add the dependencies, in feature order so that the edge table is grouped by source feature
+        this.edges = new EdgeTable(features.length);
+        for (int i = 0; i < features.length; i++) {
+            final int from = i;
+            Key.SUBSYSTEM_CONTENT.parseValues(features[i])
+                    .filter(v -> "osgi.subsystem.feature".equals(v.getQualifier("type")))
+                    .forEach(v -> {
+                        // ignore unknown features
+                        indexOf(v.id).ifPresent(to -> {
+                            dependencyMatrix[from].set(to);
+                            edges.add(from, to, EdgeKind.DIRECT, v.id, v.getQualifier("version"));
+                        });
+                        toleratedVersions(v).forEach(version -> indexOf(withVersion(v.id, version))
+                                .ifPresent(to -> edges.add(from, to, EdgeKind.TOLERATED, v.id, v.getQualifier("version"))));
+                    });
+        }
+    }
+
+    private OptionalInt indexOf(String fullName) {
+        return Optional.ofNullable(featureMap.get(fullName))
+                .map(featureIndex::get)
+                .map(OptionalInt::of)
+                .orElse(OptionalInt.empty());
+    }
+
+    private static Stream<String> toleratedVersions(ValueElement v) {
+        return Optional.ofNullable(v.getQualifier("ibm.tolerates"))
+                .map(s -> Stream.of(s.split(",")))
+                .orElse(Stream.empty())
+                .map(String::trim)
+                .filter(not(String::isEmpty));
+    }
+
+    /** replaces the version suffix of a feature name, e.g. servlet-4.0 with version 3.1 becomes servlet-3.1 */
+    private static String withVersion(String fullName, String version) {
+        return fullName.replaceFirst("-[^-]*$", "-" + version);
     }
 
     void warnMissingFeatures() {
@@ -88,31 +125,115 @@ final class LibertyFeatures {
         return featureMap.values().stream();
     }
 
+    /**
+     * Lazily finds every path through the dependency graph that matches any of the queries.
+     * Paths are only computed as the returned stream is consumed,
+     * so short-circuiting operations (e.g. {@link Stream#findAny()}) stop the traversal early.
+     */
     Stream<List<Attributes>> findFeaturePaths(List<List<QueryElement>> queries) {
-        if (queries.isEmpty()) return Stream.empty();
-        List<List<Attributes>> results = new ArrayList<>();
-        for (List<QueryElement> query : queries)
-            findFeaturePaths(allFeatures(), query, 0, new ArrayList<>(), results);
-        return results.stream();
+        return queries.stream().flatMap(this::findQueryPaths);
+    }
+
+    /**
+     * Finds every feature on a path matching any of the queries,
+     * without retaining the paths themselves.
+     */
+    BitSet findFeatureSubgraph(List<List<QueryElement>> queries) {
+        BitSet nodes = new BitSet(features.length);
+        findFeaturePaths(queries)
+                .flatMap(List::stream)
+                .mapToInt(featureIndex::get)
+                .forEach(nodes::set);
+        return nodes;
+    }
+
+    private Stream<List<Attributes>> findQueryPaths(List<QueryElement> query) {
+        return StreamSupport.stream(spliteratorUnknownSize(new PathIterator(query), ORDERED | NONNULL), false);
     }
 
-    private void findFeaturePaths(Stream<Attributes> searchSpace, List<QueryElement> query, int index, List<Attributes> path, List<List<Attributes>> results) {
-        if (query.size() == index) {
-            results.add(path);
-            index--;
-            while (!query.get(index).isStretchy()) if (index == 0) return;
-            else index--;
+    /**
+     * Depth-first search for paths matching a single query, using an explicit stack rather than recursion.
+     * Once a full match is found, the search resumes from the last stretchy query element (if any),
+     * looking for longer paths through the dependencies of the matched feature.
+     * When resuming, a feature already on the path is skipped, so that a stretchy element cannot
+     * go round a dependency cycle forever. Other elements may revisit a feature, which is bounded
+     * by the length of the query, so the search always terminates.
+     */
+    private final class PathIterator implements Iterator<List<Attributes>> {
+        private final class Frame {
+            final int index;
+            final List<Attributes> path;
+            /** the indexes of the features in the path */
+            final BitSet onPath;
+            final PrimitiveIterator.OfInt candidates;
+            /** whether this frame resumes a stretchy element after a complete match */
+            final boolean resuming;
+
+            Frame(int index, List<Attributes> path, BitSet onPath, PrimitiveIterator.OfInt candidates, boolean resuming) {
+                this.index = index;
+                this.path = path;
+                this.onPath = onPath;
+                this.candidates = candidates;
+                this.resuming = resuming;
+            }
         }
-        QueryElement qe = query.get(index);
 
-        int newIndex = index + 1;
+        final List<QueryElement> query;
+        final Deque<Frame> stack = new ArrayDeque<>();
+        List<Attributes> next;
+
+        PathIterator(List<QueryElement> query) {
+            this.query = query;
+            stack.push(new Frame(0, List.of(), new BitSet(), IntStream.range(0, features.length).iterator(), false));
+        }
 
-        searchSpace
-                .filter(qe::matches)
-                .forEach(f -> findFeaturePaths(dependencies(f), query, newIndex, Lists.append(path, f), results));
+        public boolean hasNext() {
+            if (null == next) next = findNext();
+            return null != next;
+        }
+
+        public List<Attributes> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            var result = next;
+            next = null;
+            return result;
+        }
+
+        private List<Attributes> findNext() {
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                if (!frame.candidates.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+                int i = frame.candidates.nextInt();
+                // do not let a stretchy element go round a dependency cycle
+                if (frame.resuming && frame.onPath.get(i)) continue;
+                if (!query.get(frame.index).matches(features[i])) continue;
+                List<Attributes> path = Lists.append(frame.path, features[i]);
+                BitSet onPath = (BitSet) frame.onPath.clone();
+                onPath.set(i);
+                int index = frame.index + 1;
+                if (index < query.size()) {
+                    stack.push(new Frame(index, path, onPath, dependencies(i, query.get(index)), false));
+                    continue;
+                }
+                // a complete match: find the last stretchy element to continue searching from
+                do index--; while (index >= 0 && !query.get(index).isStretchy());
+                if (index >= 0) stack.push(new Frame(index, path, onPath, dependencies(i, query.get(index)), true));
+                return path;
+            }
+            return null;
+        }
     }
 
-    Stream<Attributes> dependencies(Attributes rootFeature) {
-        return dependencyMatrix[featureIndex.get(rootFeature)].stream().mapToObj(i -> features[i]);
+    /**
+     * The dependencies of a feature that the next query element may match,
+     * depending on which kinds of edge it follows.
+     */
+    private PrimitiveIterator.OfInt dependencies(int feature, QueryElement next) {
+        return next.edgeKinds().equals(QueryElement.DIRECT_EDGES)
+                ? dependencyMatrix[feature].stream().iterator()
+                : edges.targets(feature, next.edgeKinds()).iterator();
     }
 }
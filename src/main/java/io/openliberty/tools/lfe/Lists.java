@@ -2,6 +2,8 @@ package io.openliberty.tools.lfe;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collector;
 
 import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.toUnmodifiableList;
@@ -19,6 +21,28 @@ enum Lists {
         return list.get(list.size() - 1);
     }
 
+    /**
+     * Collects the first {@code limit} distinct elements in the specified order,
+     * without retaining (or sorting) more than {@code limit} elements at any time.
+     * Elements are considered distinct if the comparator does not consider them equal,
+     * so the comparator should be consistent with equals.
+     */
+    static <T> Collector<T, ?, List<T>> leastDistinct(int limit, Comparator<? super T> order) {
+        return Collector.of(
+                () -> new TreeSet<T>(order),
+                (set, t) -> {
+                    if (set.size() == limit && order.compare(t, set.last()) >= 0) return;
+                    set.add(t);
+                    if (set.size() > limit) set.pollLast();
+                },
+                (set1, set2) -> {
+                    set1.addAll(set2);
+                    while (set1.size() > limit) set1.pollLast();
+                    return set1;
+                },
+                List::copyOf);
+    }
+
     static <T> Comparator<List<T>> comparingEachElement(Comparator<T> elementOrder) {
         return (l1, l2) -> {
             for (int i = 0; i < Math.min(l1.size(), l2.size()); i++) {
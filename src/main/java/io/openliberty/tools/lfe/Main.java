@@ -1,38 +1,55 @@
 package io.openliberty.tools.lfe;
 
+import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOError;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.OptionalInt;
 import java.util.function.Consumer;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
+import java.util.stream.Stream;
 
 import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toUnmodifiableList;
 
 public final class Main {
     public static void main(String[] args) {
         try {
-            new Main(args).run();
+            int status = new Main(args).run();
+            if (0 != status) System.exit(status);
         } catch (MisuseError e) {
             System.err.println("ERROR: " + e.getMessage());
+            System.exit(ERROR_STATUS);
         } catch (Throwable e) {
             System.err.println("ERROR: " + e.getMessage());
             e.printStackTrace();
+            System.exit(ERROR_STATUS);
         }
     }
 
+    /** distinct from the statuses returned by {@link #run()}, so that scripts can tell a failure from no match */
+    static final int ERROR_STATUS = 2;
+
     static final Path FEATURES_SUBDIR = Paths.get("lib/features");
 
     final LibertyFeatures libertyTree;
     final EnumSet<Flag> flags;
     final List<List<QueryElement>> queries;
+    final OptionalInt limit;
+    final ExportFormat exportFormat;
+    /** only set if results could be reused, i.e. when caching on disk or in batch mode */
+    final QueryCache queryCache;
     final Comparator<List<Attributes>> pathOrdering;
     final Comparator<Attributes> featureOrdering;
 
@@ -40,70 +57,140 @@ public final class Main {
         var parser = new ArgParser(args);
         this.flags = parser.flags;
         this.queries = parser.query;
+        this.limit = parser.positiveInt(Option.LIMIT);
+        if (flags.contains(Flag.BATCH) && !queries.isEmpty()) throw new MisuseError("patterns cannot be given on the command line with " + Flag.BATCH.toArg());
+        this.queryCache = parser.options.containsKey(Option.CACHE) ? new QueryCache(parser.options.get(Option.CACHE))
+                : flags.contains(Flag.BATCH) ? QueryCache.inMemory()
+                : null;
+        this.exportFormat = parser.options.containsKey(Option.EXPORT) ? ExportFormat.fromArg(parser.options.get(Option.EXPORT)) : null;
         this.libertyTree = new LibertyFeatures(flags.contains(Flag.IGNORE_DUPLICATES));
-        this.featureOrdering = flags.contains(Flag.SIMPLE_SORT)
+        final Comparator<Attributes> displayOrdering = flags.contains(Flag.SIMPLE_SORT)
                 ? comparing(this::featureName)
                 : comparing(Visibility::from).thenComparing(this::featureName);
+        // break ties between different features with the same short name, so the ordering is consistent with equals
+        this.featureOrdering = displayOrdering.thenComparing(Main::fullName);
         this.pathOrdering = Lists.comparingEachElement(featureOrdering);
     }
 
-    void run() {
+    /**
+     * @return the exit status
+     */
+    int run() {
         // some flags need processing up front
-        if (flags.contains(Flag.HELP)) { printUsage(); return; }
+        if (flags.contains(Flag.HELP)) { printUsage(); return 0; }
         if (flags.contains(Flag.WARN_MISSING)) libertyTree.warnMissingFeatures();
+        if (null != exportFormat) { exportFormat.export(libertyTree, exportNodes()); return 0; }
+        if (flags.contains(Flag.REPORT)) { new GraphReport(libertyTree).print(this::featureName); return 0; }
+        // the search is lazy, so this stops at the first match
+        if (flags.contains(Flag.EXISTS)) return libertyTree.findFeaturePaths(queries).findAny().isPresent() ? 0 : 1;
+
+        if (flags.contains(Flag.BATCH)) return runBatch();
+        printQueryResults(queries);
+        return 0;
+    }
 
-        printHeadersIfNeeded();
+    /**
+     * Answers each line of standard input as if its patterns had been given on the command line,
+     * reusing the loaded features and the query cache for every line.
+     * A line that cannot be parsed is reported, and the remaining lines are still answered.
+     * @return the exit status
+     */
+    private int runBatch() {
+        int status = 0;
+        try (var in = new BufferedReader(new InputStreamReader(System.in))) {
+            for (String line = in.readLine(); null != line; line = in.readLine()) {
+                try {
+                    printQueryResults(Stream.of(line.trim().split("\\s+"))
+                            .filter(s -> !s.isEmpty())
+                            .map(ArgParser::parseQuery)
+                            .collect(toUnmodifiableList()));
+                } catch (MisuseError e) {
+                    System.err.println("ERROR: " + e.getMessage());
+                    status = ERROR_STATUS;
+                }
+                // mark the end of the results for this line, so a script can read them as they are printed
+                System.out.println();
+                System.out.flush();
+            }
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+        return status;
+    }
 
-        final Consumer<Attributes> printVisibilityHeadings = usingHeadings() ? printVisibilityHeadings() : (f -> {});
+    private void printQueryResults(List<List<QueryElement>> queries) {
+        if (null == queryCache) {
+            printResults(queries, System.out::println);
+            return;
+        }
+        // repeated queries are answered from the cache without searching or sorting
+        queryCache.computeIfAbsent(QueryCache.key(libertyTree, queries, flags, limit), () -> {
+            List<String> lines = new ArrayList<>();
+            printResults(queries, lines::add);
+            return lines;
+        }).forEach(System.out::println);
+    }
+
+    private void printResults(List<List<QueryElement>> queries, Consumer<String> out) {
+        printHeadersIfNeeded(out);
+
+        final Consumer<Attributes> printVisibilityHeadings = usingHeadings() ? printVisibilityHeadings(out) : (f -> {});
         final String initialIndent = usingHeadings() ? "  " : "";
 
         if (flags.contains(Flag.PATHS)) {
-            libertyTree.findFeaturePaths(queries)
-                    .sorted(pathOrdering)
-                    .distinct()
+            sortedDistinct(libertyTree.findFeaturePaths(queries), pathOrdering)
                     .forEach(path -> {
                         String indent = path.stream()
                                 .map(this::featureName)
                                 .collect(joining("/"))
                                 .replaceFirst("[^/]*$", "");
-                        System.out.println(formatFeature(indent, path.get(path.size() - 1)));
+                        out.accept(formatFeature(indent, path.get(path.size() - 1)));
                     });
         } else if (flags.contains(Flag.TREE)) {
-            libertyTree.findFeaturePaths(queries)
-                    .sorted(pathOrdering)
-                    .distinct()
+            sortedDistinct(libertyTree.findFeaturePaths(queries), pathOrdering)
                     // collect these into a tree structure
                     .collect(TreeNode<Attributes>::new, TreeNode::addPath, TreeNode::combine)
                     // print the tree in ASCII
                     .traverseDepthFirst(initialIndent, printVisibilityHeadings,
-                            prefix -> feature -> System.out.println(formatFeature(prefix, feature)));
+                            prefix -> feature -> out.accept(formatFeature(prefix, feature)));
         } else {
-            libertyTree.findFeaturePaths(queries)
-                    .map(Lists::last)
-                    .sorted(featureOrdering)
-                    .distinct()
+            sortedDistinct(libertyTree.findFeaturePaths(queries).map(Lists::last), featureOrdering)
                     .peek(printVisibilityHeadings)
-                    .forEach(f -> System.out.println(formatFeature(initialIndent, f)));
+                    .forEach(f -> out.accept(formatFeature(initialIndent, f)));
 
         }
     }
 
-    private void printHeadersIfNeeded() {
+    private BitSet exportNodes() {
+        if (!queries.isEmpty()) return libertyTree.findFeatureSubgraph(queries);
+        BitSet all = new BitSet(libertyTree.features.length);
+        all.set(0, libertyTree.features.length);
+        return all;
+    }
+
+    private <T> Stream<T> sortedDistinct(Stream<T> results, Comparator<T> order) {
+        // with a limit, use a bounded top-n sort rather than sorting every result
+        return limit.isPresent()
+                ? results.collect(Lists.leastDistinct(limit.getAsInt(), order)).stream()
+                : results.sorted(order).distinct();
+    }
+
+    private void printHeadersIfNeeded(Consumer<String> out) {
         if (flags.contains(Flag.DECORATE) && ! flags.contains(Flag.TABS)) {
             // print some heading columns first
-            System.out.println("# VISIBILITY AUTO SUPERSEDED SINGLETON FEATURE NAME");
-            System.out.println("# ========== ==== ========== ========= ============");
+            out.accept("# VISIBILITY AUTO SUPERSEDED SINGLETON FEATURE NAME");
+            out.accept("# ========== ==== ========== ========= ============");
         }
     }
 
-    private static Consumer<Attributes> printVisibilityHeadings() {
+    private static Consumer<Attributes> printVisibilityHeadings(Consumer<String> out) {
         // Use a 'holder' to track the previous visibility
         Visibility[] currentVisibility = {null};
         return feature -> {
             Visibility newVis = Visibility.from(feature);
             if (newVis != currentVisibility[0]) {
                 // the visibility has changed, so print out a heading
-                System.out.printf("[%s FEATURES]%n", newVis);
+                out.accept(String.format("[%s FEATURES]", newVis));
                 currentVisibility[0] = newVis;
             }
         };
@@ -113,15 +200,19 @@ public final class Main {
 
     private static void printUsage() {
         final String cmd = Main.class.getSimpleName();
-        System.out.println("Usage: " + cmd + " [flag [flag ...] [--] <pattern> [pattern [pattern ...]]");
+        System.out.println("Usage: " + cmd + " [flag|option [flag|option ...] [--] <pattern> [pattern [pattern ...]]");
         System.out.println("Prints information about features when run from a Liberty root directory." );
         System.out.println("The patterns are treated as file glob patterns.");
         System.out.println("Asterisks match any text, and question marks match a single character.");
         System.out.println("Slashes can be added to navigate dependency hierarchies.");
+        System.out.println("By default only direct dependencies are followed. A qualifier can be appended to any pattern element");
+        System.out.println("to follow ';tolerated' dependencies (alternative versions allowed by ibm.tolerates) or ';any' dependencies.");
         System.out.println("If multiple patterns are given, features matching any pattern are listed.");
         System.out.println();
         System.out.println(Flag.describeAll());
         System.out.println();
+        System.out.println(Option.describeAll());
+        System.out.println();
         System.out.println("Examples:");
         System.out.println();
         System.out.println("\t" + cmd + " *jms*");
@@ -129,6 +220,12 @@ public final class Main {
         System.out.println();
         System.out.println("\t" + cmd + " javaee-8.0/*");
         System.out.println("\t\tList all features that javaee-8.0 depends on.");
+        System.out.println();
+        System.out.println("\t" + cmd + " 'javaee-8.0/**;any'");
+        System.out.println("\t\tList all features that javaee-8.0 depends on, including tolerated alternatives.");
+        System.out.println();
+        System.out.println("\t" + cmd + " --batch --decorate < queries.txt");
+        System.out.println("\t\tList the features matching each line of patterns in queries.txt.");
     }
 
     static Attributes read(Path p) {
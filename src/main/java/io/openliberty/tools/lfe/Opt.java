@@ -18,12 +18,19 @@ interface Opt<O extends Opt<O>> {
         return "--" + name().toLowerCase().replace('_', '-');
     }
 
+    /**
+     * Provides the argument as it should appear in usage text, including any parameter
+     */
+    default String synopsis() {
+        return toArg();
+    }
+
     /**
      * Provides an indented (possibly multi-line) description suitable for printing on a line by itself
      */
     default String describe() {
-        String separator = toArg().length() < 8 ? "\t" : String.format("%n\t\t");
-        return String.format("\t%s%s%s", toArg(), separator, desc())
+        String separator = synopsis().length() < 8 ? "\t" : String.format("%n\t\t");
+        return String.format("\t%s%s%s", synopsis(), separator, desc())
                 + Optional.of(implied().map(Opt::toArg).collect(joining(" and ")))
                 .filter(not(String::isEmpty))
                 .map(s -> " Implies " + s + ".")
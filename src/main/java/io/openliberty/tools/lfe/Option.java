@@ -0,0 +1,61 @@
+package io.openliberty.tools.lfe;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static java.util.Collections.unmodifiableMap;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Options are like {@link Flag}s but take a value from the following argument.
+ */
+enum Option implements Opt<Option> {
+    LIMIT("<n>", "Print at most n distinct results. Only the first n results (in sorted order) are retained while searching."),
+    EXPORT("<" + ExportFormat.describeAll() + ">", "Write the dependency graph in a machine-readable format."
+            + "%n\t\tIf patterns are given, only the features on matching paths (and the dependencies between them) are written."),
+    CACHE("<dir>", "Cache query results on disk in the specified directory, for reuse by later invocations."
+            + "%n\t\tResults are only reused while every feature manifest is unchanged."
+            + "%n\t\tThe least recently used results are deleted once there are more than " + QueryCache.MAX_DISK_ENTRIES + ".");
+    final String param;
+    final String desc;
+
+    Option(String param, String desc) {
+        this.param = param;
+        this.desc = String.format(desc);
+    }
+
+    public String desc() {
+        return desc;
+    }
+
+    public Stream<Opt<Option>> implied() {
+        return Stream.empty();
+    }
+
+    public String synopsis() {
+        return toArg() + " " + param;
+    }
+
+    int parsePositiveInt(String value) {
+        try {
+            int i = Integer.parseInt(value);
+            if (i > 0) return i;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new MisuseError("option '" + toArg() + "' requires a positive integer but was given '" + value + "'");
+    }
+
+    /**
+     * Provides a multi-line description of all options
+     */
+    static String describeAll() {
+        return String.format(Stream.of(values()).map(Option::describe).collect(joining("%n%n", "Options:%n", "")));
+    }
+
+    static final Map<String, Option> argMap = unmodifiableMap(Stream.of(values()).collect(HashMap::new, (m, o) -> m.put(o.toArg(), o), Map::putAll));
+
+    static Option fromArg(String arg) {
+        return argMap.get(arg);
+    }
+}
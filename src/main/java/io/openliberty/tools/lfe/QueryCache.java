@@ -0,0 +1,198 @@
+package io.openliberty.tools.lfe;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.jar.Attributes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Caches the output lines of queries, keyed by the normalised query, the flags that affect the output,
+ * and a fingerprint of the loaded features (so that any change to the install invalidates the entry).
+ * Entries are held in a bounded in-memory LRU map shared by every cache in the JVM,
+ * and optionally in a directory on disk, where the least recently used files are deleted.
+ * A {@link Main} only uses a cache if given a directory with {@link Option#CACHE},
+ * or in {@link Flag#BATCH} mode, since otherwise nothing could be reused.
+ */
+final class QueryCache {
+    static final int MAX_MEMORY_ENTRIES = 64;
+    static final int MAX_DISK_ENTRIES = 256;
+    static final String SUFFIX = ".lfe-cache";
+    static final String TEMP_SUFFIX = SUFFIX + ".tmp";
+    /** temporary files older than this were left behind by a failed write */
+    static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+    static final Set<Flag> OUTPUT_FLAGS = EnumSet.of(Flag.DECORATE, Flag.FULL_NAMES, Flag.TREE, Flag.PATHS, Flag.TABS, Flag.SIMPLE_SORT);
+
+    private static final Map<String, List<String>> memory = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+            return size() > MAX_MEMORY_ENTRIES;
+        }
+    });
+
+    final Path dir;
+
+    /**
+     * @param dir the directory to cache results on disk, or null to cache only in memory
+     */
+    QueryCache(String dir) {
+        this.dir = Optional.ofNullable(dir).map(Paths::get).orElse(null);
+    }
+
+    static QueryCache inMemory() {
+        return new QueryCache(null);
+    }
+
+    List<String> computeIfAbsent(String key, Supplier<List<String>> compute) {
+        List<String> lines = memory.get(key);
+        if (null != lines) return lines;
+        lines = readFromDisk(key).orElse(null);
+        if (null == lines) {
+            lines = List.copyOf(compute.get());
+            writeToDisk(key, lines);
+        }
+        memory.put(key, lines);
+        return lines;
+    }
+
+    /**
+     * Builds a key that is the same for any two invocations that must produce the same output.
+     * The results of multiple queries are merged and sorted, so the order of the queries is irrelevant.
+     * Each query element is normalised to its glob and the kinds of edge it follows,
+     * so that (for instance) an explicit ";direct" qualifier makes no difference.
+     * The search starts from every feature, so the first element is normalised to its glob alone.
+     */
+    static String key(LibertyFeatures liberty, List<List<QueryElement>> queries, Set<Flag> flags, OptionalInt limit) {
+        Set<Flag> outputFlags = EnumSet.noneOf(Flag.class);
+        flags.stream().filter(OUTPUT_FLAGS::contains).forEach(outputFlags::add);
+        return fingerprint(liberty)
+                + "\n" + outputFlags
+                + "\n" + (limit.isPresent() ? limit.getAsInt() : "")
+                + "\n" + queries.stream()
+                .map(q -> q.get(0).glob() + q.stream().skip(1).map(e -> "/" + e.glob() + ";" + e.edgeKinds()).collect(joining()))
+                .sorted()
+                .distinct()
+                .collect(joining("\n"));
+    }
+
+    /**
+     * Digests every attribute of every feature, in a stable order
+     */
+    static String fingerprint(LibertyFeatures liberty) {
+        MessageDigest md = sha256();
+        for (Attributes feature : liberty.features) {
+            feature.entrySet()
+                    .stream()
+                    .map(e -> e.getKey() + ": " + e.getValue() + "\n")
+                    .sorted()
+                    .forEach(s -> md.update(s.getBytes(UTF_8)));
+            md.update((byte) 0);
+        }
+        return hex(md.digest());
+    }
+
+    private Optional<List<String>> readFromDisk(String key) {
+        if (null == dir) return Optional.empty();
+        Path file = dir.resolve(fileName(key));
+        if (!Files.isRegularFile(file)) return Optional.empty();
+        try {
+            List<String> lines = Files.readAllLines(file, UTF_8);
+            if (lines.isEmpty() || !lines.get(0).equals(escape(key))) return Optional.empty();
+            // record the access, so the least recently used entries are evicted first
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(List.copyOf(lines.subList(1, lines.size())));
+        } catch (IOException e) {
+            System.err.println("WARNING: unable to read query cache file " + file + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void writeToDisk(String key, List<String> lines) {
+        if (null == dir) return;
+        Path file = dir.resolve(fileName(key));
+        try {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "tmp", TEMP_SUFFIX);
+            try (var out = Files.newBufferedWriter(tmp, UTF_8)) {
+                // the first line records the full key, in case of a hash collision
+                out.write(escape(key));
+                out.newLine();
+                for (String line : lines) {
+                    out.write(line);
+                    out.newLine();
+                }
+            }
+            Files.move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+            evictFromDisk();
+        } catch (IOException e) {
+            System.err.println("WARNING: unable to write query cache file " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void evictFromDisk() throws IOException {
+        final long staleTime = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+        try (var files = Files.list(dir)) {
+            List<Path> staleTempFiles = files
+                    .filter(p -> p.getFileName().toString().endsWith(TEMP_SUFFIX))
+                    .filter(p -> lastModified(p).toMillis() < staleTime)
+                    .collect(toList());
+            for (Path p : staleTempFiles) Files.deleteIfExists(p);
+        }
+        try (var files = Files.list(dir)) {
+            List<Path> entries = files
+                    .filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(comparing(QueryCache::lastModified).reversed())
+                    .collect(toList());
+            for (Path p : entries.subList(Math.min(MAX_DISK_ENTRIES, entries.size()), entries.size())) Files.deleteIfExists(p);
+        }
+    }
+
+    private static FileTime lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p);
+        } catch (IOException e) {
+            // treat unreadable entries as the oldest
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String fileName(String key) {
+        return hex(sha256().digest(key.getBytes(UTF_8))) + SUFFIX;
+    }
+
+    private static String escape(String key) {
+        return key.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new Error(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) sb.append(String.format("%02x", b & 0xff));
+        return sb.toString();
+    }
+}
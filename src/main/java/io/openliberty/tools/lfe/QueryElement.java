@@ -1,34 +1,99 @@
 package io.openliberty.tools.lfe;
 
+import java.util.EnumSet;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.jar.Attributes;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static io.openliberty.tools.lfe.QueryElement.SpecialQueryElement.MATCH_MANY_FEATURES;
 import static io.openliberty.tools.lfe.QueryElement.SpecialQueryElement.MATCH_ONE_FEATURE;
+import static java.util.Collections.unmodifiableSet;
 
 interface QueryElement {
+    Set<EdgeKind> DIRECT_EDGES = unmodifiableSet(EnumSet.of(EdgeKind.DIRECT));
+
     default boolean matches(Attributes feature) {
         return true;
     }
 
     boolean isStretchy();
 
+    /**
+     * The glob this element matches, without any qualifier
+     */
+    default String glob() {
+        return toString();
+    }
+
+    /**
+     * The kinds of dependency that may be followed to reach a feature matching this element
+     */
+    default Set<EdgeKind> edgeKinds() {
+        return DIRECT_EDGES;
+    }
+
+    /**
+     * Returns a copy of this element that follows the specified kinds of dependency
+     */
+    default QueryElement following(String qualifier) {
+        final QueryElement element = this;
+        final Set<EdgeKind> edgeKinds = unmodifiableSet(EdgeKind.fromQualifier(qualifier));
+        return new QueryElement() {
+            public boolean matches(Attributes feature) {
+                return element.matches(feature);
+            }
+
+            public boolean isStretchy() {
+                return element.isStretchy();
+            }
+
+            public Set<EdgeKind> edgeKinds() {
+                return edgeKinds;
+            }
+
+            public String glob() {
+                return element.glob();
+            }
+
+            public String toString() {
+                return element + ";" + qualifier;
+            }
+        };
+    }
+
     enum SpecialQueryElement implements QueryElement {
         MATCH_ONE_FEATURE {
             public boolean isStretchy() {
                 return false;
             }
+
+            public String toString() {
+                return "*";
+            }
         },
         MATCH_MANY_FEATURES {
             public boolean isStretchy() {
                 return true;
             }
+
+            public String toString() {
+                return "**";
+            }
         }
     }
 
-    static QueryElement of(String glob) {
+    /**
+     * Parses a glob with an optional qualifier, e.g. "servlet-*;tolerated"
+     */
+    static QueryElement of(String text) {
+        String[] parts = text.split(";", 2);
+        QueryElement element = ofGlob(parts[0]);
+        return parts.length == 1 ? element : element.following(parts[1]);
+    }
+
+    static QueryElement ofGlob(String glob) {
         switch (glob) {
             case "*":
                 return MATCH_ONE_FEATURE;
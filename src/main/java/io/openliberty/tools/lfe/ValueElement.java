@@ -30,6 +30,11 @@ class ValueElement {
         return qualifiers.get(key);
     }
 
+    /** all the qualifiers, sorted by key */
+    Map<? extends String, String> getQualifiers() {
+        return qualifiers;
+    }
+
     public String toString() {
         return String.format("%88s : %s", id, qualifiers);
     }